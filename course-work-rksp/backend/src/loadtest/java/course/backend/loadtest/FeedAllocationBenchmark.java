@@ -0,0 +1,129 @@
+package course.backend.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import course.backend.DTOs.ReviewResponse;
+import course.backend.DTOs.UserResponse;
+import course.backend.JavaBackApplication;
+import course.backend.entities.CustomUser;
+import course.backend.entities.Review;
+import course.backend.repositories.ReviewRepository;
+import course.backend.repositories.UserRepository;
+import course.backend.services.ReviewService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Сравнивает выделение памяти на один запрос ленты: загрузка сущностей Review с ленивым автором
+ * (прежний путь) против DTO-проекции ReviewRepository.findFeed.
+ * Поднимает контекст приложения на случайном порту, при нехватке данных создаёт отзывы.
+ *
+ * Параметры: bench.reviews (500), bench.iterations (200), bench.report.
+ */
+public class FeedAllocationBenchmark {
+    private static final String AUTHOR = "feed-benchmark-author";
+
+    public static void main(String[] args) throws Exception {
+        int reviews = Integer.getInteger("bench.reviews", 500);
+        int iterations = Integer.getInteger("bench.iterations", 200);
+        Path report = Path.of(System.getProperty("bench.report", "build/reports/loadtest/feed-allocation.json"));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(JavaBackApplication.class)
+                .properties("server.port=0", "reviews.purge.interval-ms=3600000")
+                .run(args)) {
+            ReviewRepository reviewRepository = context.getBean(ReviewRepository.class);
+            UserRepository userRepository = context.getBean(UserRepository.class);
+            ReviewService reviewService = context.getBean(ReviewService.class);
+            TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+            CustomUser viewer = tx.execute(status -> seed(userRepository, reviewRepository, reviews));
+
+            Supplier<List<ReviewResponse>> entityFeed = () -> tx.execute(status ->
+                    reviewRepository.findAllByOrderByCreatedAtDesc().stream()
+                            .map(FeedAllocationBenchmark::fromEntity)
+                            .toList());
+            Supplier<List<ReviewResponse>> projectionFeed = () -> reviewService.getAllReviews(viewer);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("reviews", reviewRepository.count());
+            result.put("iterations", iterations);
+            result.put("entity", measure(entityFeed, iterations));
+            result.put("projection", measure(projectionFeed, iterations));
+
+            ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            json.writeValue(report.toFile(), result);
+            System.out.println(json.writeValueAsString(result));
+        }
+    }
+
+    private static CustomUser seed(UserRepository userRepository, ReviewRepository reviewRepository, int reviews) {
+        CustomUser author = userRepository.findByUsername(AUTHOR)
+                .orElseGet(() -> userRepository.save(new CustomUser(AUTHOR, "-", "ROLE_USER")));
+        for (long i = reviewRepository.count(); i < reviews; i++) {
+            Review review = new Review();
+            review.setTitle("Benchmark review " + i);
+            review.setText("Lorem ipsum dolor sit amet ".repeat(10));
+            review.setRating((int) (i % 5) + 1);
+            review.setCreatedAt(LocalDateTime.now());
+            review.setUser(author);
+            reviewRepository.save(review);
+        }
+        return author;
+    }
+
+    // Прежнее отображение: автор берётся через ленивую связь Review.user
+    private static ReviewResponse fromEntity(Review review) {
+        return new ReviewResponse(
+                review.getId(),
+                review.getTitle(),
+                review.getText(),
+                review.getRating(),
+                review.getUpvotes(),
+                review.getDownvotes(),
+                review.getPhotoContentType(),
+                review.getPhotoData(),
+                review.getPhotoKey() != null ? "/api/reviews/" + review.getId() + "/photo" : null,
+                review.getCreatedAt(),
+                null,
+                review.getVersion(),
+                new UserResponse(
+                        review.getUser().getId(),
+                        review.getUser().getUsername(),
+                        review.getUser().getRole()
+                )
+        );
+    }
+
+    private static Map<String, Object> measure(Supplier<List<ReviewResponse>> feed, int iterations) {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        for (int i = 0; i < iterations / 2; i++) {
+            feed.get();
+        }
+
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            feed.get();
+        }
+        long elapsed = System.nanoTime() - started;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("allocatedKbPerRequest", bytes / iterations / 1024);
+        row.put("avgMsPerRequest", Math.round(elapsed / 1_000.0 / iterations) / 1000.0);
+        return row;
+    }
+}
@@ -0,0 +1,377 @@
+package course.backend.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор нагрузки с открытой моделью: запросы запускаются с заданной частотой
+ * независимо от скорости ответов сервера, каждый - в своём виртуальном потоке.
+ * Задержка считается от запланированного момента отправки, поэтому очередь
+ * на стороне клиента попадает в хвосты распределения (без coordinated omission).
+ *
+ * Параметры (системные свойства, из Gradle: -Ploadtest.rate=200):
+ *   loadtest.baseUrl   адрес запущенного приложения       (http://localhost:8080)
+ *   loadtest.users     число пользователей для подготовки (50)
+ *   loadtest.reviews   число отзывов для подготовки       (200)
+ *   loadtest.rate      запросов в секунду                 (100)
+ *   loadtest.duration  длительность замера, с             (60)
+ *   loadtest.warmup    прогрев перед замером, с           (10)
+ *   loadtest.mix       веса операций feed, vote, login, register, photo, create
+ *                                                         (feed:60,vote:25,login:5,register:2,photo:8)
+ *   loadtest.photoKb   размер загружаемого фото, КБ       (256)
+ *   loadtest.maxInFlight  предел одновременных запросов   (2000)
+ *   loadtest.seed      зерно генератора                   (42)
+ *                      все случайные параметры выбираются в потоке-планировщике,
+ *                      поэтому при том же зерне последовательность запросов повторяется
+ *   loadtest.report    путь к JSON-отчёту                 (build/reports/loadtest/report.json)
+ */
+public class LoadTest {
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String PASSWORD = "load-test-password";
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final Random random;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final byte[] photo;
+
+    // Заполняются последовательно до начала замера и дальше не меняются
+    private final List<SeededUser> users = new ArrayList<>();
+    private final List<SeededReview> reviews = new ArrayList<>();
+    private final AtomicInteger registered = new AtomicInteger();
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final Map<Operation, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    record SeededUser(long id, String username, String token) {}
+
+    record SeededReview(long id, long authorId) {}
+
+    enum Operation { FEED, VOTE, LOGIN, REGISTER, PHOTO, CREATE }
+
+    // Запрос с заранее выбранными параметрами: индексы пользователя и отзыва, знак голоса
+    record Call(Operation operation, int user, int review, int value) {}
+
+    static final class EndpointStats {
+        final Recorder latency = new Recorder(3);
+        final AtomicLong ok = new AtomicLong();
+        final AtomicLong shed = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+    }
+
+    LoadTest(String baseUrl, long seed, int photoKb) {
+        this.baseUrl = baseUrl;
+        this.random = new Random(seed);
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.photo = new byte[photoKb * 1024];
+        random.nextBytes(photo);
+        byte[] pngSignature = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+        System.arraycopy(pngSignature, 0, photo, 0, pngSignature.length);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new EndpointStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTest test = new LoadTest(
+                System.getProperty("loadtest.baseUrl", "http://localhost:8080"),
+                Long.getLong("loadtest.seed", 42),
+                Integer.getInteger("loadtest.photoKb", 256));
+
+        int userCount = Integer.getInteger("loadtest.users", 50);
+        int reviewCount = Integer.getInteger("loadtest.reviews", 200);
+        int rate = Integer.getInteger("loadtest.rate", 100);
+        int warmup = Integer.getInteger("loadtest.warmup", 10);
+        int duration = Integer.getInteger("loadtest.duration", 60);
+        int maxInFlight = Integer.getInteger("loadtest.maxInFlight", 2000);
+        Map<Operation, Integer> mix = parseMix(System.getProperty("loadtest.mix",
+                "feed:60,vote:25,login:5,register:2,photo:8"));
+        Path report = Path.of(System.getProperty("loadtest.report", "build/reports/loadtest/report.json"));
+
+        test.seed(userCount, reviewCount);
+        System.out.printf("seeded %d users and %d reviews%n", test.users.size(), test.reviews.size());
+
+        test.run(mix, rate, warmup, maxInFlight);
+        test.resetStats();
+        Instant started = Instant.now();
+        test.run(mix, rate, duration, maxInFlight);
+        Duration elapsed = Duration.between(started, Instant.now());
+
+        Map<String, Object> result = test.report(mix, rate, elapsed);
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        JSON.writeValue(report.toFile(), result);
+        System.out.println(JSON.writeValueAsString(result));
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            weights.put(Operation.valueOf(kv[0].trim().toUpperCase()), Integer.parseInt(kv[1].trim()));
+        }
+        return weights;
+    }
+
+    // Последовательно, чтобы порядок users и reviews (по ним выбираются индексы) не зависел от гонок
+    void seed(int userCount, int reviewCount) {
+        for (int i = 0; i < userCount; i++) {
+            register(System.nanoTime(), false);
+        }
+        if (users.isEmpty()) {
+            throw new IllegalStateException("Не удалось зарегистрировать ни одного пользователя, проверьте " + baseUrl);
+        }
+        for (int i = 0; i < reviewCount; i++) {
+            createReview(System.nanoTime(), users.get(i % users.size()), false);
+        }
+        if (reviews.isEmpty()) {
+            throw new IllegalStateException("Не удалось создать ни одного отзыва, проверьте " + baseUrl);
+        }
+    }
+
+    void run(Map<Operation, Integer> mix, int rate, int seconds, int maxInFlight) throws InterruptedException {
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * seconds;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long intended = start + i * intervalNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                Call call = next(mix, totalWeight);
+                if (!inFlight.tryAcquire()) {
+                    stats.get(call.operation()).errors.incrementAndGet();
+                    continue;
+                }
+                executor.submit(() -> {
+                    try {
+                        execute(call, intended);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    // Вызывается только из потока-планировщика: каждый запрос берёт из генератора одинаковое число значений
+    private Call next(Map<Operation, Integer> mix, int totalWeight) {
+        int roll = random.nextInt(totalWeight);
+        int user = random.nextInt(users.size());
+        int review = random.nextInt(reviews.size());
+        int value = random.nextBoolean() ? 1 : -1;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return new Call(entry.getKey(), user, review, value);
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private void execute(Call call, long intendedNanos) {
+        switch (call.operation()) {
+            case FEED -> feed(call, intendedNanos);
+            case VOTE -> vote(call, intendedNanos);
+            case LOGIN -> login(call, intendedNanos);
+            case REGISTER -> register(intendedNanos, true);
+            case PHOTO -> uploadPhoto(call, intendedNanos);
+            case CREATE -> createReview(intendedNanos, users.get(call.user()), true);
+        }
+    }
+
+    private void feed(Call call, long intended) {
+        SeededUser user = users.get(call.user());
+        send(Operation.FEED, intended, authorized(user, "/api/reviews").GET().build());
+    }
+
+    private void vote(Call call, long intended) {
+        SeededUser voter = users.get(call.user());
+        SeededReview review = reviews.get(call.review());
+        if (review.authorId() == voter.id()) {
+            review = reviews.get((call.review() + 1) % reviews.size());
+        }
+        String body = "{\"value\": " + call.value() + "}";
+        send(Operation.VOTE, intended, authorized(voter, "/api/reviews/" + review.id() + "/vote")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    private void login(Call call, long intended) {
+        SeededUser user = users.get(call.user());
+        String body = "{\"username\": \"" + user.username() + "\", \"password\": \"" + PASSWORD + "\"}";
+        send(Operation.LOGIN, intended, HttpRequest.newBuilder(uri("/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    private void register(long intended, boolean measured) {
+        String username = "lt-" + runId + "-" + registered.incrementAndGet();
+        String body = "{\"username\": \"" + username + "\", \"password\": \"" + PASSWORD + "\"}";
+        HttpResponse<String> response = send(measured ? Operation.REGISTER : null, intended,
+                HttpRequest.newBuilder(uri("/api/auth/register"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build());
+        if (!measured && response != null && response.statusCode() == 200) {
+            JsonNode json = readTree(response.body());
+            users.add(new SeededUser(json.get("id").asLong(), username, json.get("token").asText()));
+        }
+    }
+
+    private void createReview(long intended, SeededUser author, boolean measured) {
+        int n = created.incrementAndGet();
+        String body = "{\"title\": \"Load test review " + n + "\", \"text\": \"" + "Lorem ipsum ".repeat(20)
+                + "\", \"rating\": " + (n % 5 + 1) + "}";
+        HttpResponse<String> response = send(measured ? Operation.CREATE : null, intended,
+                authorized(author, "/api/reviews")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build());
+        // Отзывы, созданные во время замера, в пул не добавляются: его размер не должен зависеть от гонок
+        if (!measured && response != null && response.statusCode() == 201) {
+            reviews.add(new SeededReview(readTree(response.body()).get("id").asLong(), author.id()));
+        }
+    }
+
+    private void uploadPhoto(Call call, long intended) {
+        SeededReview review = reviews.get(call.review());
+        SeededUser author = users.stream().filter(u -> u.id() == review.authorId()).findFirst()
+                .orElse(users.get(0));
+        send(Operation.PHOTO, intended, authorized(author, "/api/reviews/" + review.id() + "/photo")
+                .header("Content-Type", "image/png")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(photo))
+                .build());
+    }
+
+    private HttpRequest.Builder authorized(SeededUser user, String path) {
+        return HttpRequest.newBuilder(uri(path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Bearer " + user.token());
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    // operation == null - служебный запрос подготовки данных, в статистику не попадает
+    private HttpResponse<String> send(Operation operation, long intendedNanos, HttpRequest request) {
+        HttpResponse<String> response = null;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            // учитывается ниже как ошибка
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (operation != null) {
+            EndpointStats endpoint = stats.get(operation);
+            endpoint.latency.recordValue(Math.max(0, (System.nanoTime() - intendedNanos) / 1000));
+            if (response == null) {
+                endpoint.errors.incrementAndGet();
+            } else {
+                endpoint.statuses.computeIfAbsent(response.statusCode(), s -> new AtomicLong()).incrementAndGet();
+                if (response.statusCode() < 400) {
+                    endpoint.ok.incrementAndGet();
+                } else if (response.statusCode() == 503) {
+                    endpoint.shed.incrementAndGet();
+                } else {
+                    endpoint.errors.incrementAndGet();
+                }
+            }
+        }
+        return response;
+    }
+
+    private static JsonNode readTree(String body) {
+        try {
+            return JSON.readTree(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected response: " + body, e);
+        }
+    }
+
+    void resetStats() {
+        for (EndpointStats endpoint : stats.values()) {
+            endpoint.latency.reset();
+            endpoint.ok.set(0);
+            endpoint.shed.set(0);
+            endpoint.errors.set(0);
+            endpoint.statuses.clear();
+        }
+    }
+
+    Map<String, Object> report(Map<Operation, Integer> mix, int rate, Duration elapsed) {
+        double seconds = elapsed.toMillis() / 1000.0;
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            EndpointStats endpoint = stats.get(operation);
+            var histogram = endpoint.latency.getIntervalHistogram();
+            long count = histogram.getTotalCount();
+            if (count == 0) {
+                continue;
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("requests", count);
+            row.put("ok", endpoint.ok.get());
+            row.put("shed503", endpoint.shed.get());
+            row.put("errors", endpoint.errors.get());
+            row.put("throughputPerSec", round(endpoint.ok.get() / seconds));
+            row.put("p50Ms", histogram.getValueAtPercentile(50) / 1000.0);
+            row.put("p99Ms", histogram.getValueAtPercentile(99) / 1000.0);
+            row.put("p999Ms", histogram.getValueAtPercentile(99.9) / 1000.0);
+            row.put("maxMs", histogram.getMaxValue() / 1000.0);
+            row.put("statuses", new LinkedHashMap<>(endpoint.statuses));
+            endpoints.put(operation.name().toLowerCase(), row);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("timestamp", Instant.now().toString());
+        result.put("baseUrl", baseUrl);
+        result.put("targetRatePerSec", rate);
+        result.put("durationSec", round(seconds));
+        result.put("users", users.size());
+        result.put("reviews", reviews.size());
+        result.put("mix", mix);
+        result.put("endpoints", endpoints);
+        return result;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,21 @@
+package course.backend.DTOs;
+
+import java.time.LocalDateTime;
+
+// Строка ленты: колонки отзыва и автора одним запросом, без управляемых сущностей
+public record ReviewFeedRow(
+        Long id,
+        String title,
+        String text,
+        int rating,
+        int upvotes,
+        int downvotes,
+        String photoContentType,
+        String photoData,
+        String photoKey,
+        LocalDateTime createdAt,
+        long version,
+        Long authorId,
+        String authorUsername,
+        String authorRole
+) {}
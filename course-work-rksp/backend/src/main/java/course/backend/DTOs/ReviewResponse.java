@@ -11,7 +11,9 @@ public record ReviewResponse(
         int downvotes,
         String photoContentType,
         String photoBase64, // Будем отдавать изображение в base64
+        String photoUrl, // Для фото, загруженных через /api/reviews/{id}/photo
         LocalDateTime createdAt,
         Integer userVote,
+        long version,
         UserResponse user
 ) {}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package course.backend.configurations;
+
+/**
+ * AIMD-лимит числа одновременно выполняемых запросов.
+ * Пока задержка укладывается в целевую и лимит используется, он растёт примерно на 1 за "окно"
+ * из limit запросов; при превышении целевой задержки лимит уменьшается в BACKOFF раз,
+ * не чаще одного раза за targetLatency, чтобы одна медленная волна не обнулила его.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyNanos) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.lastDecreaseNanos = System.nanoTime() - targetLatencyNanos;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    public synchronized void release(long latencyNanos) {
+        inFlight--;
+        long now = System.nanoTime();
+        if (latencyNanos > targetLatencyNanos) {
+            if (now - lastDecreaseNanos >= targetLatencyNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF);
+                lastDecreaseNanos = now;
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
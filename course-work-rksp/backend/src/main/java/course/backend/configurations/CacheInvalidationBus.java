@@ -0,0 +1,249 @@
+package course.backend.configurations;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Шина инвалидации локальных кэшей между узлами поверх Postgres LISTEN/NOTIFY.
+ * <p>
+ * publish() копит ключи до конца транзакции и отправляет их одним pg_notify на топик
+ * в beforeCommit: Postgres доставляет уведомления только после фиксации, дубликаты ключей отбрасываются.
+ * Слушатель держит отдельное соединение вне пула, собирает уведомления за batchWindowMs,
+ * объединяет ключи по топикам и передаёт их обработчикам. Свои сообщения узел пропускает -
+ * отправитель обновляет собственные кэши сам. После (пере)подключения все кэши сбрасываются целиком,
+ * так как уведомления за время разрыва потеряны.
+ * <p>
+ * getNotifications() на полуоткрытом TCP-соединении (упал NAT, балансировщик, узел БД) просто
+ * возвращает пустой массив, поэтому раз в healthCheckMs слушатель делает SELECT 1: на мёртвом сокете
+ * он падает по socketTimeout, и срабатывает переподключение со сбросом кэшей.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus implements SmartLifecycle {
+    static final String CHANNEL = "cache_invalidation";
+    // Больше интервала опроса getNotifications(1000), иначе таймаут сработает на живом соединении
+    private static final int SOCKET_TIMEOUT_SECONDS = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final Map<String, CacheInvalidationHandler> handlers;
+    private final boolean enabled;
+    private final long batchWindowMs;
+    private final long reconnectDelayMs;
+    private final long healthCheckMs;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private volatile boolean running;
+    private Thread listener;
+
+    public CacheInvalidationBus(JdbcTemplate jdbcTemplate,
+                                DataSourceProperties dataSourceProperties,
+                                List<CacheInvalidationHandler> handlers,
+                                @Value("${cache-invalidation.enabled:true}") boolean enabled,
+                                @Value("${cache-invalidation.batch-window-ms:50}") long batchWindowMs,
+                                @Value("${cache-invalidation.reconnect-delay-ms:5000}") long reconnectDelayMs,
+                                @Value("${cache-invalidation.health-check-ms:30000}") long healthCheckMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.handlers = handlers.stream()
+                .collect(Collectors.toMap(CacheInvalidationHandler::topic, Function.identity()));
+        this.enabled = enabled;
+        this.batchWindowMs = batchWindowMs;
+        this.reconnectDelayMs = reconnectDelayMs;
+        this.healthCheckMs = healthCheckMs;
+    }
+
+    /**
+     * Сообщает другим узлам, что запись key в топике topic устарела.
+     * Внутри транзакции отправка откладывается до её фиксации, вне транзакции - выполняется сразу.
+     */
+    public void publish(String topic, Object key) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(Map.of(topic, Set.of(String.valueOf(key))));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Set<String>> pending = (Map<String, Set<String>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<String, Set<String>> keys = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    send(keys);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidationBus.this);
+                }
+            });
+            pending = keys;
+        }
+        pending.computeIfAbsent(topic, t -> new LinkedHashSet<>()).add(String.valueOf(key));
+    }
+
+    private void send(Map<String, Set<String>> keys) {
+        keys.forEach((topic, topicKeys) -> {
+            for (String payload : InvalidationMessage.toPayloads(nodeId, topic, topicKeys,
+                    InvalidationMessage.MAX_PAYLOAD_BYTES)) {
+                jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, payload);
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || handlers.isEmpty()) {
+            return;
+        }
+        running = true;
+        listener = Thread.ofPlatform().name("cache-invalidation-listener").daemon().start(this::listen);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+            try {
+                listener.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(
+                    dataSourceProperties.determineUrl(), connectionProperties());
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                log.info("Cache invalidation listener started, node {}", nodeId);
+                handlers.values().forEach(this::invalidateAll);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                long lastCheck = System.nanoTime();
+                while (running) {
+                    if (System.nanoTime() - lastCheck >= TimeUnit.MILLISECONDS.toNanos(healthCheckMs)) {
+                        statement.execute("SELECT 1");
+                        lastCheck = System.nanoTime();
+                    }
+                    Map<String, Set<String>> batch = new LinkedHashMap<>();
+                    if (collect(pgConnection.getNotifications(1000), batch)) {
+                        // Добираем уведомления, пришедшие в течение окна, чтобы применить их одним проходом
+                        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+                        long remainingMs;
+                        while ((remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0) {
+                            collect(pgConnection.getNotifications((int) remainingMs), batch);
+                        }
+                        dispatch(batch);
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation listener disconnected, retrying in {} ms", reconnectDelayMs, e);
+                try {
+                    Thread.sleep(reconnectDelayMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Properties connectionProperties() {
+        Properties properties = new Properties();
+        String username = dataSourceProperties.determineUsername();
+        String password = dataSourceProperties.determinePassword();
+        if (username != null) {
+            properties.setProperty("user", username);
+        }
+        if (password != null) {
+            properties.setProperty("password", password);
+        }
+        properties.setProperty("tcpKeepAlive", "true");
+        properties.setProperty("socketTimeout", String.valueOf(SOCKET_TIMEOUT_SECONDS));
+        return properties;
+    }
+
+    // Возвращает true, если получено хотя бы одно сообщение (в том числе своё)
+    private boolean collect(PGNotification[] notifications, Map<String, Set<String>> batch) {
+        if (notifications == null || notifications.length == 0) {
+            return false;
+        }
+        for (PGNotification notification : notifications) {
+            try {
+                InvalidationMessage message = InvalidationMessage.parse(notification.getParameter());
+                if (!message.nodeId().equals(nodeId)) {
+                    batch.computeIfAbsent(message.topic(), t -> new LinkedHashSet<>()).addAll(message.keys());
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping malformed invalidation message", e);
+            }
+        }
+        return true;
+    }
+
+    private void dispatch(Map<String, Set<String>> batch) {
+        batch.forEach((topic, keys) -> {
+            CacheInvalidationHandler handler = handlers.get(topic);
+            if (handler == null) {
+                return;
+            }
+            try {
+                if (keys.contains(InvalidationMessage.ALL)) {
+                    handler.invalidateAll();
+                } else {
+                    handler.invalidate(keys);
+                }
+                log.debug("Invalidated {} keys in {}", keys.size(), topic);
+            } catch (RuntimeException e) {
+                log.warn("Cache invalidation handler for {} failed", topic, e);
+            }
+        });
+    }
+
+    private void invalidateAll(CacheInvalidationHandler handler) {
+        try {
+            handler.invalidateAll();
+        } catch (RuntimeException e) {
+            log.warn("Cache invalidation handler for {} failed", handler.topic(), e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package course.backend.configurations;
+
+import java.util.Set;
+
+/**
+ * Локальный кэш, который сбрасывается по сообщениям CacheInvalidationBus с других узлов.
+ */
+public interface CacheInvalidationHandler {
+    String topic();
+
+    void invalidate(Set<String> keys);
+
+    // Вызывается, когда сообщения могли быть потеряны (например, после переподключения слушателя)
+    void invalidateAll();
+}
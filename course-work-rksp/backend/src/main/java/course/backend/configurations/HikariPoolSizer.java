@@ -0,0 +1,29 @@
+package course.backend.configurations;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * При datasource.pool.size-from-cores=true задаёт размер пула Hikari по числу ядер:
+ * ядра * 2 + 1 (формула из вики PostgreSQL, ядра приложения берутся как оценка ядер БД).
+ * Пул фиксированного размера: minimumIdle = maximumPoolSize.
+ */
+@Component
+@RequiredArgsConstructor
+public class HikariPoolSizer implements BeanPostProcessor {
+    private final Environment environment;
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource dataSource
+                && environment.getProperty("datasource.pool.size-from-cores", Boolean.class, false)) {
+            int size = Runtime.getRuntime().availableProcessors() * 2 + 1;
+            dataSource.setMaximumPoolSize(size);
+            dataSource.setMinimumIdle(size);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,306 @@
+package course.backend.configurations;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Повторный POST с тем же Idempotency-Key получает сохранённый ответ первого запроса,
+ * не выполняя его заново. Регистрируется после цепочки Spring Security,
+ * поэтому ключи разных пользователей не пересекаются. Анонимные запросы и /api/auth/** не кэшируются:
+ * их ответы (JWT) нельзя отдавать другому клиенту с тем же ключом.
+ * Ключ привязан к SHA-256 тела: повтор с другим телом получает 422.
+ * Ответ уходит клиенту сразу, для повтора копируется не больше idempotency.max-body-bytes.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 255;
+    // Временные отказы: повтор с тем же ключом должен выполнить запрос заново
+    private static final Set<Integer> TRANSIENT_STATUSES = Set.of(
+            HttpStatus.REQUEST_TIMEOUT.value(), HttpStatus.CONFLICT.value(), HttpStatus.TOO_MANY_REQUESTS.value());
+    private static final List<String> REPLAYED_HEADERS = List.of(HttpHeaders.ETAG, HttpHeaders.LOCATION);
+
+    private final IdempotencyStore store;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || request.getHeader(HEADER) == null
+                || request.getRequestURI().startsWith("/api/auth/")
+                || !isAuthenticated();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(HEADER);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST, "Invalid " + HEADER);
+            return;
+        }
+
+        String key = SecurityContextHolder.getContext().getAuthentication().getName()
+                + " " + request.getRequestURI() + " " + idempotencyKey;
+        IdempotencyStore.Entry existing = store.reserve(key);
+        if (existing != null) {
+            if (existing.response() == null) {
+                reject(response, HttpStatus.CONFLICT, "Request with this " + HEADER + " is in progress");
+            } else if (!existing.requestHash().equals(new HashingRequest(request).finish())) {
+                reject(response, HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " was already used with a different body");
+            } else {
+                replay(existing.response(), response);
+            }
+            return;
+        }
+
+        // Тело хэшируется по мере чтения, без буферизации (фото передаются потоком)
+        HashingRequest hashingRequest = new HashingRequest(request);
+        CapturingResponse capturingResponse = new CapturingResponse(response, store.maxBodyBytes());
+        boolean completed = false;
+        try {
+            filterChain.doFilter(hashingRequest, capturingResponse);
+            byte[] body = capturingResponse.finish();
+            int status = capturingResponse.getStatus();
+            // Ошибки сервера и временные отказы не кэшируем: такой запрос можно повторить с тем же ключом
+            if (status < 500 && !TRANSIENT_STATUSES.contains(status)) {
+                store.complete(key, hashingRequest.finish(), new IdempotencyStore.CachedResponse(
+                        status, capturingResponse.getContentType(), replayedHeaders(capturingResponse), body));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                store.release(key);
+            }
+        }
+    }
+
+    private static boolean isAuthenticated() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken);
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write(message);
+    }
+
+    private static Map<String, String> replayedHeaders(HttpServletResponse response) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : REPLAYED_HEADERS) {
+            String value = response.getHeader(name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        return headers;
+    }
+
+    private static void replay(IdempotencyStore.CachedResponse cached, HttpServletResponse response)
+            throws IOException {
+        response.setStatus(cached.status());
+        cached.headers().forEach(response::setHeader);
+        response.setHeader("Idempotent-Replayed", "true");
+        // Слишком большое тело не сохранялось: повтор получает только статус
+        if (cached.body() == null) {
+            response.setContentLength(0);
+            return;
+        }
+        if (cached.contentType() != null) {
+            response.setContentType(cached.contentType());
+        }
+        response.setContentLength(cached.body().length);
+        response.getOutputStream().write(cached.body());
+    }
+
+    // Пишет тело ответа клиенту и копирует его первые limit байт; длиннее - копия отбрасывается
+    private static final class CapturingResponse extends HttpServletResponseWrapper {
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CapturingResponse(HttpServletResponse response, int limit) {
+            super(response);
+            this.limit = limit;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream out = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        if (capture(1)) {
+                            copy.write(b);
+                        }
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        if (capture(len)) {
+                            copy.write(b, off, len);
+                        }
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        out.flush();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return out.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        out.setWriteListener(listener);
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            super.flushBuffer();
+        }
+
+        private boolean capture(int len) {
+            if (copy != null && copy.size() + len > limit) {
+                copy = null;
+            }
+            return copy != null;
+        }
+
+        // Сбрасывает writer и возвращает копию тела, null - если тело превысило limit
+        byte[] finish() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return copy != null ? copy.toByteArray() : null;
+        }
+    }
+
+    // Считает SHA-256 тела запроса, пока его читает обработчик
+    private static final class HashingRequest extends HttpServletRequestWrapper {
+        private final MessageDigest digest;
+        private ServletInputStream inputStream;
+
+        HashingRequest(HttpServletRequest request) {
+            super(request);
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                ServletInputStream in = super.getInputStream();
+                inputStream = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = in.read();
+                        if (b != -1) {
+                            digest.update((byte) b);
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int read = in.read(b, off, len);
+                        if (read > 0) {
+                            digest.update(b, off, read);
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return in.isFinished();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return in.isReady();
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        in.setReadListener(listener);
+                    }
+                };
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        // Дочитывает то, что обработчик не прочитал, и возвращает хэш всего тела
+        String finish() throws IOException {
+            getInputStream().transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
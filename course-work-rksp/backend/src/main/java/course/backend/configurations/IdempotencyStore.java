@@ -0,0 +1,122 @@
+package course.backend.configurations;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ограниченное по размеру хранилище ответов на запросы с заголовком Idempotency-Key.
+ * Записи вытесняются по TTL и при превышении maxEntries или maxBytes суммарно по телам
+ * (самые старые первыми). Тело длиннее maxBodyBytes не хранится - повтор получает только статус.
+ */
+@Component
+public class IdempotencyStore {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxBodyBytes;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private long totalBytes;
+
+    public IdempotencyStore(@Value("${idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${idempotency.max-bytes:33554432}") long maxBytes,
+                            @Value("${idempotency.max-body-bytes:65536}") int maxBodyBytes,
+                            @Value("${idempotency.ttl-seconds:86400}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxBodyBytes = maxBodyBytes;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    // headers - повторяемые заголовки (ETag, Location); body == null - тело не поместилось в maxBodyBytes
+    public record CachedResponse(int status, String contentType, Map<String, String> headers, byte[] body) {
+        int size() {
+            return body != null ? body.length : 0;
+        }
+    }
+
+    // response == null - запрос с этим ключом ещё выполняется; requestHash - SHA-256 тела первого запроса
+    public record Entry(String requestHash, CachedResponse response, long expiresAt) {
+        int size() {
+            return response != null ? response.size() : 0;
+        }
+    }
+
+    /**
+     * Резервирует ключ за текущим запросом.
+     * Возвращает null, если ключ свободен, иначе - существующую запись.
+     */
+    public synchronized Entry reserve(String key) {
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        Entry existing = entries.get(key);
+        if (existing != null && existing.expiresAt() > now) {
+            return existing;
+        }
+        entries.put(key, new Entry(null, null, now + ttlMillis));
+        evictOverflow();
+        return null;
+    }
+
+    public synchronized void complete(String key, String requestHash, CachedResponse response) {
+        if (response.size() > maxBodyBytes) {
+            response = new CachedResponse(response.status(), response.contentType(), response.headers(), null);
+        }
+        // remove + put переносит запись в конец, чтобы порядок совпадал с порядком истечения
+        if (remove(key)) {
+            entries.put(key, new Entry(requestHash, response, System.currentTimeMillis() + ttlMillis));
+            totalBytes += response.size();
+            evictOverflow();
+        }
+    }
+
+    public synchronized void release(String key) {
+        remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public int maxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    private boolean remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed == null) {
+            return false;
+        }
+        totalBytes -= removed.size();
+        return true;
+    }
+
+    // Записи упорядочены по времени вставки, поэтому просроченные всегда в начале
+    private void evictExpired(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.expiresAt() > now) {
+                return;
+            }
+            totalBytes -= entry.size();
+            it.remove();
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+            totalBytes -= it.next().size();
+            it.remove();
+        }
+    }
+}
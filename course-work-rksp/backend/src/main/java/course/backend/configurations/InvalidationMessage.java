@@ -0,0 +1,59 @@
+package course.backend.configurations;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Сообщение шины инвалидации: узел-отправитель, топик и ключи.
+ * В payload NOTIFY кодируется строкой "узел|топик|ключ1,ключ2", ключи экранируются URL-кодированием.
+ */
+public record InvalidationMessage(String nodeId, String topic, Set<String> keys) {
+    // Postgres ограничивает payload NOTIFY 8000 байтами
+    public static final int MAX_PAYLOAD_BYTES = 7900;
+    // Ключ, означающий "сбросить весь кэш топика"
+    public static final String ALL = "*";
+
+    /**
+     * Разбивает ключи на payload'ы не длиннее maxBytes.
+     */
+    public static List<String> toPayloads(String nodeId, String topic, Collection<String> keys, int maxBytes) {
+        String header = nodeId + "|" + topic + "|";
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(header);
+        for (String key : keys) {
+            String encoded = URLEncoder.encode(key, StandardCharsets.UTF_8);
+            if (payload.length() > header.length() && payload.length() + 1 + encoded.length() > maxBytes) {
+                payloads.add(payload.toString());
+                payload.setLength(header.length());
+            }
+            if (payload.length() > header.length()) {
+                payload.append(',');
+            }
+            payload.append(encoded);
+        }
+        if (payload.length() > header.length()) {
+            payloads.add(payload.toString());
+        }
+        return payloads;
+    }
+
+    public static InvalidationMessage parse(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Некорректное сообщение инвалидации: " + payload);
+        }
+        Set<String> keys = Arrays.stream(parts[2].split(","))
+                .filter(key -> !key.isEmpty())
+                .map(key -> URLDecoder.decode(key, StandardCharsets.UTF_8))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return new InvalidationMessage(parts[0], parts[1], keys);
+    }
+}
@@ -0,0 +1,83 @@
+package course.backend.configurations;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.CorsProcessor;
+import org.springframework.web.cors.DefaultCorsProcessor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Отбрасывает запросы сверх адаптивного лимита их класса ответом 503 с Retry-After,
+ * чтобы всплеск загрузок или входов не занимал потоки Tomcat, нужные ленте и голосам.
+ * Стоит перед Spring Security, поэтому отказ не стоит ни разбора JWT, ни обращения к БД;
+ * CORS-заголовки к отказу добавляет сам, иначе браузер не покажет SPA ни статус, ни Retry-After.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class LoadSheddingFilter extends OncePerRequestFilter {
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final boolean enabled;
+    private final CorsConfigurationSource corsConfigurationSource;
+    private final CorsProcessor corsProcessor = new DefaultCorsProcessor();
+    private final Map<RequestClass, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(RequestClass.class);
+
+    public LoadSheddingFilter(@Value("${load-shedding.enabled:true}") boolean enabled,
+                              CorsConfigurationSource corsConfigurationSource) {
+        this.enabled = enabled;
+        this.corsConfigurationSource = corsConfigurationSource;
+        for (RequestClass requestClass : RequestClass.values()) {
+            limiters.put(requestClass, requestClass.newLimiter());
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        AdaptiveConcurrencyLimiter limiter = limiters.get(RequestClass.of(request));
+        if (!limiter.tryAcquire()) {
+            CorsConfiguration corsConfiguration = corsConfigurationSource.getCorsConfiguration(request);
+            if (corsConfiguration != null && !corsProcessor.processRequest(corsConfiguration, request, response)) {
+                return; // чужой Origin: процессор уже ответил 403
+            }
+            // Без sendError: перенаправление на /error снова прошло бы через фильтры
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Server is overloaded, retry later");
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            limiter.release(System.nanoTime() - start);
+        }
+    }
+
+    public AdaptiveConcurrencyLimiter limiter(RequestClass requestClass) {
+        return limiters.get(requestClass);
+    }
+}
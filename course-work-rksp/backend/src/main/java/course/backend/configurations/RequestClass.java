@@ -0,0 +1,53 @@
+package course.backend.configurations;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Классы запросов с отдельными лимитами параллельности.
+ * targetLatencyMs - SLO класса: при превышении лимит уменьшается.
+ */
+public enum RequestClass {
+    READ_FEED(50, 10, 200, 200),
+    VOTE(50, 10, 200, 100),
+    WRITE(8, 2, 32, 2000),    // создание и правка отзывов, загрузка фото
+    AUTH(8, 2, 32, 1000),     // BCrypt при входе и регистрации
+    OTHER(50, 10, 200, 500);
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyMs;
+
+    RequestClass(int initialLimit, int minLimit, int maxLimit, long targetLatencyMs) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyMs = targetLatencyMs;
+    }
+
+    public AdaptiveConcurrencyLimiter newLimiter() {
+        return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, targetLatencyMs * 1_000_000);
+    }
+
+    public static RequestClass of(HttpServletRequest request) {
+        String method = request.getMethod();
+        String path = request.getRequestURI();
+
+        if (path.startsWith("/api/auth/")) {
+            return AUTH;
+        }
+        if (!path.startsWith("/api/reviews")) {
+            return OTHER;
+        }
+        if ("GET".equals(method)) {
+            return path.endsWith("/photo") ? OTHER : READ_FEED;
+        }
+        if ("POST".equals(method) && path.endsWith("/vote")) {
+            return VOTE;
+        }
+        if ("POST".equals(method) || "PUT".equals(method)) {
+            return WRITE;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,48 @@
+package course.backend.controllers;
+
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.PSQLState;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.sql.SQLException;
+
+@RestControllerAdvice
+public class RestExceptionHandler {
+
+    // Параллельная запись той же версии отзыва - клиент должен перечитать отзыв и повторить
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ProblemDetail handleOptimisticLock(OptimisticLockingFailureException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, "Review was modified by another request");
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ProblemDetail handleConstraintViolation(DataIntegrityViolationException e) {
+        // Два одновременных первых голоса одного пользователя за один отзыв
+        if (isUniqueViolationOn(e, "votes")) {
+            return ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, "Conflicting concurrent request");
+        }
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, "Request violates a data constraint");
+    }
+
+    private static boolean isUniqueViolationOn(Throwable e, String table) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (!(cause instanceof SQLException sql)) {
+                continue;
+            }
+            // Ошибка пакетной вставки приходит в цепочке getNextException
+            for (SQLException next = sql; next != null; next = next.getNextException()) {
+                if (next instanceof PSQLException psql && PSQLState.UNIQUE_VIOLATION.getState().equals(psql.getSQLState())) {
+                    ServerErrorMessage message = psql.getServerErrorMessage();
+                    return message != null && table.equals(message.getTable());
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -5,8 +5,12 @@ import course.backend.DTOs.ReviewResponse;
 import course.backend.DTOs.VoteRequest;
 import course.backend.entities.CustomUser;
 import course.backend.entities.Review;
+import course.backend.services.ReviewPhotoService;
 import course.backend.services.ReviewService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -15,7 +19,10 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.net.URI;
 import java.nio.file.AccessDeniedException;
 import java.util.List;
 
@@ -24,6 +31,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ReviewController {
     private final ReviewService reviewService;
+    private final ReviewPhotoService reviewPhotoService;
 
     @PostMapping("/{reviewId}/vote")
     public ResponseEntity<ReviewResponse> voteReview(
@@ -32,11 +40,12 @@ public class ReviewController {
     ) {
         CustomUser userDetails = (CustomUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         ReviewResponse response = reviewService.vote(reviewId, voteRequest.value(), userDetails);
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(String.valueOf(response.version())).body(response);
     }
     @GetMapping
     public ResponseEntity<List<ReviewResponse>> getAllReviews() {
-        return ResponseEntity.ok(reviewService.getAllReviews());
+        CustomUser userDetails = (CustomUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return ResponseEntity.ok(reviewService.getAllReviews(userDetails));
     }
 
     @PostMapping
@@ -51,10 +60,12 @@ public class ReviewController {
     @PutMapping("/{id}")
     public ResponseEntity<ReviewResponse> updateReview(
             @PathVariable Long id,
-            @RequestBody ReviewRequest request
+            @RequestBody ReviewRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws AccessDeniedException {
         CustomUser userDetails = (CustomUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        return ResponseEntity.ok(reviewService.updateReview(id, request, userDetails));
+        ReviewResponse response = reviewService.updateReview(id, request, userDetails, parseVersion(ifMatch));
+        return ResponseEntity.ok().eTag(String.valueOf(response.version())).body(response);
     }
 
     @DeleteMapping("/{id}")
@@ -65,5 +76,38 @@ public class ReviewController {
         reviewService.deleteReview(id, userDetails);
         return ResponseEntity.noContent().build();
     }
-}
 
+    private static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.startsWith("W/") ? ifMatch.substring(2) : ifMatch;
+        try {
+            return Long.parseLong(tag.replace("\"", "").trim());
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Invalid If-Match header");
+        }
+    }
+
+    // Тело запроса - сами байты изображения, без multipart и base64
+    @PostMapping(value = "/{id}/photo", consumes = {"image/*", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<Void> uploadPhoto(
+            @PathVariable Long id,
+            HttpServletRequest request
+    ) throws IOException {
+        CustomUser userDetails = (CustomUser) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        reviewPhotoService.uploadPhoto(id, request.getInputStream(), request.getContentLengthLong(), userDetails);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/reviews/" + id + "/photo"))
+                .build();
+    }
+
+    @GetMapping("/{id}/photo")
+    public ResponseEntity<Resource> getPhoto(@PathVariable Long id) {
+        return reviewPhotoService.loadPhoto(id)
+                .map(photo -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(photo.contentType()))
+                        .body(photo.resource()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
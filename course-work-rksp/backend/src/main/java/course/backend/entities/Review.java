@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -11,6 +13,8 @@ import java.util.List;
 
 @Entity
 @Table(name = "reviews")
+@SQLRestriction("deleted = false")
+@DynamicUpdate // UPDATE только изменённых колонок, чтобы не затирать счётчики голосов из adjustVotes
 @Getter
 @Setter
 @NoArgsConstructor
@@ -40,14 +44,22 @@ public class Review {
     @Column(name = "photo_content_type")
     private String photoContentType;
 
+    @Column(name = "photo_key")
+    private String photoKey;
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
-    @OneToMany(
-            mappedBy = "review",
-            cascade = CascadeType.ALL,
-            orphanRemoval = true
-    )
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    // Удалённые отзывы скрыты из всех запросов и физически удаляются ReviewPurger
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean deleted;
+
+    // Голоса удаляются пачками в ReviewPurger, а не каскадом через эту коллекцию
+    @OneToMany(mappedBy = "review")
     private List<Vote> votes = new ArrayList<>();
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -8,6 +8,9 @@ import lombok.Setter;
 @Entity
 @Table(name = "votes", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"user_id", "review_id"})
+}, indexes = {
+        // Уникальный ключ начинается с user_id, а очистка и проверка FK ищут голоса по review_id
+        @Index(name = "idx_votes_review_id", columnList = "review_id")
 })
 @Getter
 @Setter
@@ -1,21 +1,53 @@
 package course.backend.repositories;
 
+import course.backend.DTOs.ReviewFeedRow;
 import course.backend.entities.Review;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ReviewRepository extends JpaRepository<Review, Long> {
     List<Review> findAllByOrderByCreatedAtDesc();
 
+    @Query("SELECT new course.backend.DTOs.ReviewFeedRow(r.id, r.title, r.text, r.rating, r.upvotes, r.downvotes, " +
+            "r.photoContentType, r.photoData, r.photoKey, r.createdAt, r.version, u.id, u.username, u.role) " +
+            "FROM Review r JOIN r.user u ORDER BY r.createdAt DESC")
+    List<ReviewFeedRow> findFeed();
+
+    Optional<Review> findByIdAndDeletedFalse(Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Review r WHERE r.id = :reviewId AND r.deleted = false")
+    Optional<Review> findByIdForUpdate(@Param("reviewId") Long reviewId);
+
     @Modifying
-    @Query("UPDATE Review r SET r.upvotes = r.upvotes + 1 WHERE r.id = :reviewId")
-    void incrementUpvotes(@Param("reviewId") Long reviewId);
+    @Query("UPDATE Review r SET r.deleted = true WHERE r.id = :reviewId")
+    void markDeleted(@Param("reviewId") Long reviewId);
+
+    interface PurgeCandidate {
+        Long getId();
+        String getPhotoKey();
+    }
+
+    // Нативные запросы: @SQLRestriction скрывает удалённые отзывы от JPQL
+    @Query(value = "SELECT id, photo_key AS photoKey FROM reviews WHERE deleted = true ORDER BY id LIMIT :limit",
+            nativeQuery = true)
+    List<PurgeCandidate> findPurgeCandidates(@Param("limit") int limit);
 
     @Modifying
-    @Query("UPDATE Review r SET r.downvotes = r.downvotes + 1 WHERE r.id = :reviewId")
-    void incrementDownvotes(@Param("reviewId") Long reviewId);
+    @Transactional
+    @Query(value = "DELETE FROM reviews WHERE id = :reviewId AND deleted = true", nativeQuery = true)
+    int purgeDeleted(@Param("reviewId") Long reviewId);
+
+    // Счётчики меняются атомарно и без увеличения версии, чтобы голоса не конфликтовали с правками текста
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Review r SET r.upvotes = r.upvotes + :upDelta, r.downvotes = r.downvotes + :downDelta WHERE r.id = :reviewId")
+    void adjustVotes(@Param("reviewId") Long reviewId, @Param("upDelta") int upDelta, @Param("downDelta") int downDelta);
 }
\ No newline at end of file
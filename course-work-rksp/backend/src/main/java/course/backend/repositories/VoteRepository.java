@@ -4,10 +4,35 @@ import course.backend.entities.CustomUser;
 import course.backend.entities.Review;
 import course.backend.entities.Vote;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface VoteRepository extends JpaRepository<Vote, Long> {
     Optional<Vote> findByUserAndReview(CustomUser user, Review review);
-    void deleteAllByReview(Review review);
+
+    // Меняет значение, только если оно ещё другое: из двух одновременных одинаковых запросов
+    // строку изменит только первый, второй дождётся его блокировки и получит 0
+    @Modifying
+    @Query("UPDATE Vote v SET v.value = :value WHERE v.id = :id AND v.value <> :value")
+    int changeValue(@Param("id") Long id, @Param("value") int value);
+
+    interface UserVoteView {
+        Long getReviewId();
+        Integer getValue();
+    }
+
+    @Query("SELECT v.review.id AS reviewId, v.value AS value FROM Vote v WHERE v.user.id = :userId")
+    List<UserVoteView> findVotesByUserId(@Param("userId") Long userId);
+
+    // Один DELETE на пачку строк вместо загрузки и удаления каждого Vote по отдельности
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM votes WHERE id IN (SELECT id FROM votes WHERE review_id = :reviewId LIMIT :limit)",
+            nativeQuery = true)
+    int deleteChunkByReviewId(@Param("reviewId") Long reviewId, @Param("limit") int limit);
 }
\ No newline at end of file
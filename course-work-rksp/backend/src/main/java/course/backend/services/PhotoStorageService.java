@@ -0,0 +1,129 @@
+package course.backend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Хранилище фотографий отзывов на диске.
+ * Тело запроса копируется в файл через буфер фиксированного размера,
+ * размер и сигнатура изображения проверяются по мере поступления байтов.
+ */
+@Service
+public class PhotoStorageService {
+    public static final int MAX_FILE_SIZE = 5 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int SNIFF_LENGTH = 12;
+
+    private final Path root;
+
+    public PhotoStorageService(@Value("${photos.storage-dir:uploads}") String storageDir) {
+        this.root = Path.of(storageDir).toAbsolutePath().normalize();
+    }
+
+    public record StoredPhoto(String key, String contentType, long size) {}
+
+    public StoredPhoto store(InputStream in, long declaredLength) throws IOException {
+        if (declaredLength > MAX_FILE_SIZE) {
+            throw tooLarge();
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int headerLength = in.readNBytes(buffer, 0, SNIFF_LENGTH);
+        String contentType = sniffContentType(Arrays.copyOf(buffer, headerLength));
+        if (contentType == null) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Файл не является изображением");
+        }
+
+        Files.createDirectories(root);
+        Path tmp = Files.createTempFile(root, "upload-", ".part");
+        try {
+            long total = headerLength;
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                out.write(buffer, 0, headerLength);
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    total += read;
+                    if (total > MAX_FILE_SIZE) {
+                        throw tooLarge();
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            String key = UUID.randomUUID().toString();
+            Files.move(tmp, resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            return new StoredPhoto(key, contentType, total);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    public Resource load(String key) {
+        return new FileSystemResource(resolve(key));
+    }
+
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось удалить фото " + key, e);
+        }
+    }
+
+    static String sniffContentType(byte[] header) {
+        if (startsWith(header, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(header, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (startsWith(header, 'R', 'I', 'F', 'F') && header.length >= 12
+                && header[8] == 'W' && header[9] == 'E' && header[10] == 'B' && header[11] == 'P') {
+            return "image/webp";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int... signature) {
+        if (header.length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.getParent().equals(root)) {
+            throw new IllegalArgumentException("Некорректный ключ фото");
+        }
+        return path;
+    }
+
+    private static ResponseStatusException tooLarge() {
+        return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "Размер фото превышает " + MAX_FILE_SIZE + " байт");
+    }
+}
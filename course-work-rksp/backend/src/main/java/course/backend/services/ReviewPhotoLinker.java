@@ -0,0 +1,49 @@
+package course.backend.services;
+
+import course.backend.entities.Review;
+import course.backend.repositories.ReviewRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class ReviewPhotoLinker {
+    private final ReviewRepository reviewRepository;
+    private final PhotoStorageService photoStorageService;
+
+    @Async
+    @Transactional
+    public void link(Long reviewId, PhotoStorageService.StoredPhoto photo) {
+        // Блокировка строки: параллельные загрузки в один отзыв применяются по очереди
+        Optional<Review> found = reviewRepository.findByIdForUpdate(reviewId);
+        if (found.isEmpty()) {
+            photoStorageService.delete(photo.key());
+            return;
+        }
+
+        Review review = found.get();
+        String previousKey = review.getPhotoKey();
+        review.setPhotoKey(photo.key());
+        review.setPhotoContentType(photo.contentType());
+        review.setPhotoData(null);
+        reviewRepository.save(review);
+
+        // Старый файл удаляем только после фиксации новой ссылки, новый - если ссылка не сохранилась
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED && previousKey != null) {
+                    photoStorageService.delete(previousKey);
+                } else if (status != STATUS_COMMITTED) {
+                    photoStorageService.delete(photo.key());
+                }
+            }
+        });
+    }
+}
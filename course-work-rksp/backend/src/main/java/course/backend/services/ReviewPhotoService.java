@@ -0,0 +1,45 @@
+package course.backend.services;
+
+import course.backend.entities.CustomUser;
+import course.backend.entities.Review;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AccessDeniedException;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class ReviewPhotoService {
+    private final ReviewService reviewService;
+    private final PhotoStorageService photoStorageService;
+    private final ReviewPhotoLinker reviewPhotoLinker;
+
+    // Не транзакционный: соединение с БД не удерживается, пока клиент передаёт тело запроса
+    public void uploadPhoto(Long reviewId, InputStream body, long contentLength, CustomUser user)
+            throws IOException {
+        Review review = reviewService.getReviewById(reviewId);
+        if (!review.getUser().getId().equals(user.getId()) && user.getRole().equals("ROLE_USER")) {
+            throw new AccessDeniedException("You can only edit your own reviews");
+        }
+
+        PhotoStorageService.StoredPhoto photo = photoStorageService.store(body, contentLength);
+        reviewPhotoLinker.link(reviewId, photo);
+    }
+
+    public Optional<PhotoResource> loadPhoto(Long reviewId) {
+        Review review = reviewService.getReviewById(reviewId);
+        if (review.getPhotoKey() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new PhotoResource(
+                photoStorageService.load(review.getPhotoKey()),
+                review.getPhotoContentType()
+        ));
+    }
+
+    public record PhotoResource(Resource resource, String contentType) {}
+}
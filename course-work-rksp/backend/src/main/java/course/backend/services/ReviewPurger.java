@@ -0,0 +1,50 @@
+package course.backend.services;
+
+import course.backend.repositories.ReviewRepository;
+import course.backend.repositories.VoteRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Физически удаляет отзывы, помеченные как удалённые.
+ * Голоса удаляются пачками по chunkSize строк, каждая пачка - в своей короткой транзакции.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReviewPurger {
+    private final ReviewRepository reviewRepository;
+    private final VoteRepository voteRepository;
+    private final PhotoStorageService photoStorageService;
+
+    @Value("${reviews.purge.batch-size:100}")
+    private int batchSize;
+
+    @Value("${reviews.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    @Scheduled(initialDelayString = "${reviews.purge.interval-ms:30000}",
+            fixedDelayString = "${reviews.purge.interval-ms:30000}")
+    public void purgeDeletedReviews() {
+        for (ReviewRepository.PurgeCandidate review : reviewRepository.findPurgeCandidates(batchSize)) {
+            try {
+                purge(review);
+            } catch (RuntimeException e) {
+                // Отзыв останется помеченным и будет удалён при следующем запуске
+                log.warn("Failed to purge review {}", review.getId(), e);
+            }
+        }
+    }
+
+    private void purge(ReviewRepository.PurgeCandidate review) {
+        while (voteRepository.deleteChunkByReviewId(review.getId(), chunkSize) == chunkSize) {
+            // следующая пачка
+        }
+        if (reviewRepository.purgeDeleted(review.getId()) > 0 && review.getPhotoKey() != null) {
+            photoStorageService.delete(review.getPhotoKey());
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package course.backend.services;
 
+import course.backend.DTOs.ReviewFeedRow;
 import course.backend.DTOs.ReviewRequest;
 import course.backend.DTOs.ReviewResponse;
 import course.backend.DTOs.UserResponse;
 import course.backend.DTOs.VoteRequest;
+import course.backend.configurations.CacheInvalidationBus;
 import course.backend.entities.CustomUser;
 import course.backend.entities.Review;
 import course.backend.entities.Vote;
@@ -12,9 +14,13 @@ import course.backend.repositories.UserRepository;
 import course.backend.repositories.VoteRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
 import java.nio.file.AccessDeniedException;
@@ -28,14 +34,15 @@ import java.util.Optional;
 @Transactional
 public class ReviewService {
     private final ReviewRepository reviewRepository;
-    private final UserRepository userRepository;
     private final VoteRepository voteRepository;
-
-    private static final int MAX_FILE_SIZE = 5 * 1024 * 1024;
-
-    public List<ReviewResponse> getAllReviews() {
-        return reviewRepository.findAllByOrderByCreatedAtDesc().stream()
-                .map(this::mapToResponse)
+    private final UserVoteIndex userVoteIndex;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    @Transactional(readOnly = true)
+    public List<ReviewResponse> getAllReviews(CustomUser viewer) {
+        UserVoteIndex.UserVotes votes = userVoteIndex.votesOf(viewer.getId());
+        return reviewRepository.findFeed().stream()
+                .map(row -> mapToResponse(row, votes.valueOf(row.id())))
                 .toList();
     }
 
@@ -48,51 +55,68 @@ public class ReviewService {
         review.setUser(user);
 
         if (request.photoBase64() != null && !request.photoBase64().isEmpty()) {
+            validateBase64Photo(request.photoBase64(), request.photoContentType());
             review.setPhotoData(request.photoBase64());
             review.setPhotoContentType(request.photoContentType());
         }
 
         Review savedReview = reviewRepository.save(review);
-        return mapToResponse(savedReview);
+        return mapToResponse(savedReview, null);
     }
 
     public Review getReviewById(Long id) {
-        return reviewRepository.findById(id)
+        return reviewRepository.findByIdAndDeletedFalse(id)
                 .orElseThrow(() -> new EntityNotFoundException("Review not found with id: " + id));
     }
 
-    public ReviewResponse updateReview(Long id, ReviewRequest request, CustomUser user) throws AccessDeniedException {
-        Review review = reviewRepository.findById(id)
+    public ReviewResponse updateReview(Long id, ReviewRequest request, CustomUser user, Long expectedVersion)
+            throws AccessDeniedException {
+        Review review = reviewRepository.findByIdAndDeletedFalse(id)
                 .orElseThrow(() -> new EntityNotFoundException("Review not found"));
 
         if (!review.getUser().getId().equals(user.getId()) && user.getRole().equals("ROLE_USER") ) {
             throw new AccessDeniedException("You can only edit your own reviews");
         }
 
+        if (expectedVersion != null && expectedVersion != review.getVersion()) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Review was modified by another request");
+        }
+
         review.setTitle(request.title());
         review.setText(request.text());
         review.setRating(request.rating());
 
-        Review updatedReview = reviewRepository.save(review);
-        return mapToResponse(updatedReview);
+        // flush сразу, чтобы в ответ попала уже увеличенная версия
+        Review updatedReview = reviewRepository.saveAndFlush(review);
+        return mapToResponse(updatedReview, userVoteIndex.votesOf(user.getId()).valueOf(id));
     }
 
     public void deleteReview(Long id, CustomUser user) throws AccessDeniedException {
-        Review review = reviewRepository.findById(id)
+        Review review = reviewRepository.findByIdAndDeletedFalse(id)
                 .orElseThrow(() -> new EntityNotFoundException("Review not found"));
 
         if (!review.getUser().getId().equals(user.getId()) && !user.getRole().equals("ROLE_ADMIN")) {
             throw new AccessDeniedException("You don't have permission to delete this review");
         }
 
-        voteRepository.deleteAllByReview(review);
-        reviewRepository.delete(review);
+        // Голоса и фото удалит ReviewPurger в фоне
+        reviewRepository.markDeleted(id);
     }
 
-    private ReviewResponse mapToResponse(Review review) {
-        Integer userVote = voteRepository.findByUserAndReview(userRepository.getById(review.getUser().getId()), review)
-                .map(Vote::getValue)
-                .orElse(null);
+    private void validateBase64Photo(String photoBase64, String contentType) {
+        int padding = photoBase64.endsWith("==") ? 2 : photoBase64.endsWith("=") ? 1 : 0;
+        long decodedSize = (long) photoBase64.length() / 4 * 3 - padding;
+        if (decodedSize > PhotoStorageService.MAX_FILE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Размер фото превышает " + PhotoStorageService.MAX_FILE_SIZE + " байт");
+        }
+        if (contentType == null || !contentType.startsWith("image/")) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Файл не является изображением");
+        }
+    }
+
+    // userVote - голос текущего пользователя за этот отзыв
+    private ReviewResponse mapToResponse(Review review, Integer userVote) {
         return new ReviewResponse(
                 review.getId(),
                 review.getTitle(),
@@ -102,8 +126,10 @@ public class ReviewService {
                 review.getDownvotes(),
                 review.getPhotoContentType(),
                 review.getPhotoData(), // Теперь просто возвращаем сохраненную строку
+                review.getPhotoKey() != null ? "/api/reviews/" + review.getId() + "/photo" : null,
                 review.getCreatedAt(),
                 userVote,
+                review.getVersion(),
                 new UserResponse(
                         review.getUser().getId(),
                         review.getUser().getUsername(),
@@ -112,13 +138,31 @@ public class ReviewService {
         );
     }
 
+    private ReviewResponse mapToResponse(ReviewFeedRow row, Integer userVote) {
+        return new ReviewResponse(
+                row.id(),
+                row.title(),
+                row.text(),
+                row.rating(),
+                row.upvotes(),
+                row.downvotes(),
+                row.photoContentType(),
+                row.photoData(),
+                row.photoKey() != null ? "/api/reviews/" + row.id() + "/photo" : null,
+                row.createdAt(),
+                userVote,
+                row.version(),
+                new UserResponse(row.authorId(), row.authorUsername(), row.authorRole())
+        );
+    }
+
     @Transactional
     public ReviewResponse vote(Long reviewId, int value, CustomUser voter) {
         if (value != 1 && value != -1) {
             throw new IllegalArgumentException("Недопустимое значение голоса");
         }
 
-        Review review = reviewRepository.findById(reviewId)
+        Review review = reviewRepository.findByIdAndDeletedFalse(reviewId)
                 .orElseThrow(() -> new EntityNotFoundException("Отзыв не найден"));
 
         if (review.getUser().getId().equals(voter.getId())) {
@@ -128,30 +172,40 @@ public class ReviewService {
         Vote existingVote = voteRepository.findByUserAndReview(voter, review)
                 .orElse(null);
 
-        if (existingVote != null) {
-            // Отменяем предыдущий голос
-            if (existingVote.getValue() == 1) {
-                review.setUpvotes(review.getUpvotes() - 1);
-            } else {
-                review.setDownvotes(review.getDownvotes() - 1);
-            }
-            voteRepository.delete(existingVote);
+        // Повторный голос с тем же значением ничего не меняет, поэтому ретраи клиента безопасны
+        if (existingVote != null && existingVote.getValue() == value) {
+            return mapToResponse(review, value);
         }
 
-        // Добавляем новый голос
-        if (value == 1) {
-            review.setUpvotes(review.getUpvotes() + 1);
+        int upDelta = value == 1 ? 1 : 0;
+        int downDelta = value == -1 ? 1 : 0;
+
+        if (existingVote != null) {
+            if (voteRepository.changeValue(existingVote.getId(), value) == 0) {
+                // Такой же запрос уже изменил голос параллельно, счётчики он тоже поправил
+                return mapToResponse(getReviewById(reviewId), value);
+            }
+            // Отменяем предыдущий голос
+            upDelta -= existingVote.getValue() == 1 ? 1 : 0;
+            downDelta -= existingVote.getValue() == -1 ? 1 : 0;
         } else {
-            review.setDownvotes(review.getDownvotes() + 1);
+            Vote newVote = new Vote();
+            newVote.setUser(voter);
+            newVote.setReview(review);
+            newVote.setValue(value);
+            voteRepository.save(newVote);
         }
 
-        Vote newVote = new Vote();
-        newVote.setUser(voter);
-        newVote.setReview(review);
-        newVote.setValue(value);
-        voteRepository.save(newVote);
+        reviewRepository.adjustVotes(reviewId, upDelta, downDelta);
+        cacheInvalidationBus.publish(UserVoteIndex.TOPIC, voter.getId());
 
-        Review updatedReview = reviewRepository.save(review);
-        return mapToResponse(updatedReview);
+        Long voterId = voter.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                userVoteIndex.record(voterId, reviewId, value);
+            }
+        });
+        return mapToResponse(getReviewById(reviewId), value);
     }
 }
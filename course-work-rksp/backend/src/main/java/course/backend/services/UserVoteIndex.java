@@ -0,0 +1,179 @@
+package course.backend.services;
+
+import course.backend.configurations.CacheInvalidationHandler;
+import course.backend.repositories.VoteRepository;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Индекс голосов пользователей: для каждого пользователя два сжатых битовых множества
+ * (Roaring) с id отзывов, за которые он голосовал "за" и "против".
+ * Загружается лениво при первом обращении, обновляется после фиксации голоса
+ * и вытесняется по LRU, когда суммарный размер превышает memoryBudgetBytes.
+ * Голоса, поданные на других узлах, сбрасывают запись пользователя через CacheInvalidationBus.
+ */
+@Component
+public class UserVoteIndex implements CacheInvalidationHandler {
+    public static final String TOPIC = "user-votes";
+
+    // Оценка накладных расходов на пользователя: ключ, узел LinkedHashMap, объекты-обёртки
+    private static final long ENTRY_OVERHEAD_BYTES = 160;
+
+    private final VoteRepository voteRepository;
+    private final long memoryBudgetBytes;
+
+    private final LinkedHashMap<Long, UserVotes> users = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    // Загрузки в процессе: userId -> метка загрузки. Голос или инвалидация пользователя снимает метку,
+    // и загрузка, начатая до них, не кэшируется; загрузки других пользователей не затрагиваются
+    private final HashMap<Long, Object> loading = new HashMap<>();
+
+    public UserVoteIndex(VoteRepository voteRepository,
+                         @Value("${vote-index.memory-budget-bytes:67108864}") long memoryBudgetBytes) {
+        this.voteRepository = voteRepository;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public UserVotes votesOf(Long userId) {
+        Object token = new Object();
+        synchronized (this) {
+            UserVotes cached = users.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            loading.put(userId, token);
+        }
+
+        UserVotes loaded = new UserVotes();
+        try {
+            for (VoteRepository.UserVoteView vote : voteRepository.findVotesByUserId(userId)) {
+                loaded.add(vote.getReviewId(), vote.getValue());
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loading.remove(userId, token);
+            }
+            throw e;
+        }
+        loaded.compact();
+
+        synchronized (this) {
+            UserVotes cached = users.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            if (loading.remove(userId, token)) {
+                install(userId, loaded);
+            }
+            return loaded;
+        }
+    }
+
+    public synchronized void record(Long userId, Long reviewId, int value) {
+        UserVotes votes = users.get(userId);
+        if (votes == null) {
+            loading.remove(userId);
+            return;
+        }
+        long before = votes.sizeInBytes();
+        votes.record(reviewId, value);
+        usedBytes += votes.sizeInBytes() - before;
+        evictOverBudget();
+    }
+
+    @Override
+    public String topic() {
+        return TOPIC;
+    }
+
+    @Override
+    public synchronized void invalidate(Set<String> userIds) {
+        for (String userId : userIds) {
+            Long id = Long.valueOf(userId);
+            // Загрузка, начатая до фиксации голоса на другом узле, могла прочитать старые данные
+            loading.remove(id);
+            UserVotes removed = users.remove(id);
+            if (removed != null) {
+                usedBytes -= removed.sizeInBytes() + ENTRY_OVERHEAD_BYTES;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        loading.clear();
+        users.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int cachedUsers() {
+        return users.size();
+    }
+
+    private void install(Long userId, UserVotes votes) {
+        users.put(userId, votes);
+        usedBytes += votes.sizeInBytes() + ENTRY_OVERHEAD_BYTES;
+        evictOverBudget();
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Long, UserVotes>> it = users.entrySet().iterator();
+        while (usedBytes > memoryBudgetBytes && it.hasNext()) {
+            usedBytes -= it.next().getValue().sizeInBytes() + ENTRY_OVERHEAD_BYTES;
+            it.remove();
+        }
+    }
+
+    public static final class UserVotes {
+        private final Roaring64NavigableMap upvoted = new Roaring64NavigableMap();
+        private final Roaring64NavigableMap downvoted = new Roaring64NavigableMap();
+        private long sizeInBytes;
+
+        public synchronized Integer valueOf(Long reviewId) {
+            if (upvoted.contains(reviewId)) {
+                return 1;
+            }
+            if (downvoted.contains(reviewId)) {
+                return -1;
+            }
+            return null;
+        }
+
+        public synchronized void record(Long reviewId, int value) {
+            add(reviewId, value);
+            sizeInBytes = upvoted.getLongSizeInBytes() + downvoted.getLongSizeInBytes();
+        }
+
+        synchronized void add(Long reviewId, int value) {
+            if (value == 1) {
+                downvoted.removeLong(reviewId);
+                upvoted.addLong(reviewId);
+            } else {
+                upvoted.removeLong(reviewId);
+                downvoted.addLong(reviewId);
+            }
+        }
+
+        // Перевод плотных участков в run-контейнеры после массовой загрузки
+        synchronized void compact() {
+            upvoted.runOptimize();
+            downvoted.runOptimize();
+            sizeInBytes = upvoted.getLongSizeInBytes() + downvoted.getLongSizeInBytes();
+        }
+
+        public synchronized long sizeInBytes() {
+            return sizeInBytes;
+        }
+    }
+}
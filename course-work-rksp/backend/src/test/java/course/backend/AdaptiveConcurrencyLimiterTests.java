@@ -0,0 +1,49 @@
+package course.backend;
+
+import course.backend.configurations.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTests {
+
+    private static final long TARGET = 100_000_000; // 100 мс
+
+    @Test
+    void rejectsAboveLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, TARGET);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        limiter.release(TARGET / 2);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void growsWhileLatencyIsWithinTarget() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, TARGET);
+
+        for (int i = 0; i < 100; i++) {
+            while (limiter.tryAcquire()) {
+                // заполняем лимит
+            }
+            limiter.release(TARGET / 2);
+        }
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void shrinksWhenLatencyExceedsTargetButNotBelowMinimum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 10, 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(1);
+        }
+
+        assertEquals(2, limiter.getLimit());
+    }
+}
@@ -0,0 +1,101 @@
+package course.backend;
+
+import course.backend.configurations.IdempotencyStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTests {
+
+    private static final IdempotencyStore.CachedResponse CREATED =
+            new IdempotencyStore.CachedResponse(201, "application/json", Map.of("Location", "/api/reviews/1"), "{}".getBytes());
+
+    @Test
+    void replaysCompletedResponse() {
+        IdempotencyStore store = new IdempotencyStore(10, 1024, 64, 60);
+
+        assertNull(store.reserve("alice /api/reviews k1"));
+        store.complete("alice /api/reviews k1", "hash", CREATED);
+
+        IdempotencyStore.Entry entry = store.reserve("alice /api/reviews k1");
+        assertNotNull(entry);
+        assertEquals(201, entry.response().status());
+        assertEquals("/api/reviews/1", entry.response().headers().get("Location"));
+    }
+
+    @Test
+    void reportsInProgressRequest() {
+        IdempotencyStore store = new IdempotencyStore(10, 1024, 64, 60);
+
+        assertNull(store.reserve("k"));
+
+        IdempotencyStore.Entry entry = store.reserve("k");
+        assertNotNull(entry);
+        assertNull(entry.response());
+    }
+
+    @Test
+    void releasedKeyCanBeRetried() {
+        IdempotencyStore store = new IdempotencyStore(10, 1024, 64, 60);
+
+        store.reserve("k");
+        store.release("k");
+
+        assertNull(store.reserve("k"));
+    }
+
+    @Test
+    void evictsEldestWhenFull() {
+        IdempotencyStore store = new IdempotencyStore(2, 1024, 64, 60);
+
+        store.reserve("a");
+        store.reserve("b");
+        store.reserve("c");
+
+        assertEquals(2, store.size());
+        assertNull(store.reserve("a"));
+    }
+
+    @Test
+    void evictsEldestWhenBodiesExceedByteLimit() {
+        IdempotencyStore store = new IdempotencyStore(10, 100, 64, 60);
+        IdempotencyStore.CachedResponse body =
+                new IdempotencyStore.CachedResponse(201, "application/json", Map.of(), new byte[40]);
+
+        for (String key : new String[]{"a", "b", "c"}) {
+            store.reserve(key);
+            store.complete(key, "hash", body);
+        }
+
+        assertEquals(80, store.totalBytes());
+        assertNull(store.reserve("a"));
+        assertNotNull(store.reserve("c"));
+    }
+
+    @Test
+    void keepsOnlyStatusForOversizedBody() {
+        IdempotencyStore store = new IdempotencyStore(10, 1024, 64, 60);
+
+        store.reserve("k");
+        store.complete("k", "hash", new IdempotencyStore.CachedResponse(
+                201, "application/json", Map.of("Location", "/api/reviews/1"), new byte[65]));
+
+        IdempotencyStore.Entry entry = store.reserve("k");
+        assertEquals(201, entry.response().status());
+        assertNull(entry.response().body());
+        assertEquals("/api/reviews/1", entry.response().headers().get("Location"));
+        assertEquals(0, store.totalBytes());
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() {
+        IdempotencyStore store = new IdempotencyStore(10, 1024, 64, 0);
+
+        store.reserve("k");
+        store.complete("k", "hash", CREATED);
+
+        assertNull(store.reserve("k"));
+    }
+}
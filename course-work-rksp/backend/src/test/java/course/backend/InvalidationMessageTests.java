@@ -0,0 +1,45 @@
+package course.backend;
+
+import course.backend.configurations.InvalidationMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvalidationMessageTests {
+
+    @Test
+    void roundTripsKeysWithSeparators() {
+        List<String> payloads = InvalidationMessage.toPayloads("node1", "users", List.of("alice", "a,b|c", "иван"), 7900);
+
+        assertEquals(1, payloads.size());
+        InvalidationMessage message = InvalidationMessage.parse(payloads.get(0));
+        assertEquals("node1", message.nodeId());
+        assertEquals("users", message.topic());
+        assertEquals(Set.of("alice", "a,b|c", "иван"), message.keys());
+    }
+
+    @Test
+    void splitsKeysAcrossPayloadsWithinLimit() {
+        List<String> keys = IntStream.range(0, 5000).mapToObj(String::valueOf).toList();
+
+        List<String> payloads = InvalidationMessage.toPayloads("node1", "user-votes", keys, 1000);
+
+        assertTrue(payloads.size() > 1);
+        Set<String> received = new LinkedHashSet<>();
+        for (String payload : payloads) {
+            assertTrue(payload.length() <= 1000);
+            received.addAll(InvalidationMessage.parse(payload).keys());
+        }
+        assertEquals(new LinkedHashSet<>(keys), received);
+    }
+
+    @Test
+    void rejectsMalformedPayload() {
+        assertThrows(IllegalArgumentException.class, () -> InvalidationMessage.parse("garbage"));
+    }
+}
@@ -0,0 +1,81 @@
+package course.backend;
+
+import course.backend.services.PhotoStorageService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhotoStorageServiceTests {
+
+    @TempDir
+    Path storageDir;
+
+    private static final byte[] PNG_HEADER = {
+            (byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D
+    };
+
+    // Поток заданной длины, не выделяющий память под всё тело
+    private static InputStream streamOf(byte[] header, long length) {
+        return new InputStream() {
+            private long position;
+
+            @Override
+            public int read() {
+                if (position >= length) {
+                    return -1;
+                }
+                return position < header.length ? header[(int) position++] & 0xFF : (int) (position++ & 0x7F);
+            }
+        };
+    }
+
+    @Test
+    void storesImageAndDetectsContentType() throws Exception {
+        PhotoStorageService storage = new PhotoStorageService(storageDir.toString());
+
+        PhotoStorageService.StoredPhoto photo = storage.store(streamOf(PNG_HEADER, 1000), -1);
+
+        assertEquals("image/png", photo.contentType());
+        assertEquals(1000, photo.size());
+        assertEquals(1000, Files.size(storageDir.resolve(photo.key())));
+    }
+
+    @Test
+    void rejectsNonImage() {
+        PhotoStorageService storage = new PhotoStorageService(storageDir.toString());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> storage.store(new ByteArrayInputStream("<script>alert(1)</script>".getBytes()), -1));
+
+        assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, e.getStatusCode());
+    }
+
+    @Test
+    void rejectsOversizedUploadWithoutLeavingFiles() throws Exception {
+        PhotoStorageService storage = new PhotoStorageService(storageDir.toString());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> storage.store(streamOf(PNG_HEADER, PhotoStorageService.MAX_FILE_SIZE + 1L), -1));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatusCode());
+        try (var files = Files.list(storageDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void rejectsDeclaredOversizedUploadBeforeReading() {
+        PhotoStorageService storage = new PhotoStorageService(storageDir.toString());
+
+        assertThrows(ResponseStatusException.class,
+                () -> storage.store(InputStream.nullInputStream(), PhotoStorageService.MAX_FILE_SIZE + 1L));
+    }
+}
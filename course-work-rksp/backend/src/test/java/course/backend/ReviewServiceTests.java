@@ -0,0 +1,73 @@
+package course.backend;
+
+import course.backend.configurations.CacheInvalidationBus;
+import course.backend.entities.CustomUser;
+import course.backend.entities.Review;
+import course.backend.entities.Vote;
+import course.backend.repositories.ReviewRepository;
+import course.backend.repositories.VoteRepository;
+import course.backend.services.ReviewService;
+import course.backend.services.UserVoteIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReviewServiceTests {
+    private final ReviewRepository reviewRepository = mock(ReviewRepository.class);
+    private final VoteRepository voteRepository = mock(VoteRepository.class);
+    private final ReviewService reviewService = new ReviewService(
+            reviewRepository, voteRepository, mock(UserVoteIndex.class), mock(CacheInvalidationBus.class));
+
+    private final CustomUser voter = user(1L);
+    private final Review review = new Review();
+    private final Vote existingVote = new Vote();
+
+    private static CustomUser user(Long id) {
+        CustomUser user = new CustomUser("user" + id, "-", "ROLE_USER");
+        user.setId(id);
+        return user;
+    }
+
+    @BeforeEach
+    void setUp() {
+        // vote() регистрирует afterCommit, как внутри транзакции
+        TransactionSynchronizationManager.initSynchronization();
+
+        review.setId(10L);
+        review.setUser(user(2L));
+        existingVote.setId(5L);
+        existingVote.setValue(1);
+        when(reviewRepository.findByIdAndDeletedFalse(10L)).thenReturn(Optional.of(review));
+        when(voteRepository.findByUserAndReview(voter, review)).thenReturn(Optional.of(existingVote));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void changedVoteMovesCountersOnce() {
+        when(voteRepository.changeValue(5L, -1)).thenReturn(1);
+
+        reviewService.vote(10L, -1, voter);
+
+        verify(reviewRepository).adjustVotes(10L, -1, 1);
+    }
+
+    @Test
+    void concurrentDuplicateVoteChangeDoesNotMoveCounters() {
+        // Параллельный такой же запрос успел изменить строку голоса первым
+        when(voteRepository.changeValue(5L, -1)).thenReturn(0);
+
+        reviewService.vote(10L, -1, voter);
+
+        verify(reviewRepository, never()).adjustVotes(anyLong(), anyInt(), anyInt());
+    }
+}
@@ -0,0 +1,133 @@
+package course.backend;
+
+import course.backend.repositories.VoteRepository;
+import course.backend.services.UserVoteIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserVoteIndexTests {
+
+    private static VoteRepository.UserVoteView vote(long reviewId, int value) {
+        return new VoteRepository.UserVoteView() {
+            @Override
+            public Long getReviewId() {
+                return reviewId;
+            }
+
+            @Override
+            public Integer getValue() {
+                return value;
+            }
+        };
+    }
+
+    @Test
+    void loadsLazilyOnceAndResolvesVotes() {
+        VoteRepository repository = mock(VoteRepository.class);
+        when(repository.findVotesByUserId(1L)).thenReturn(List.of(vote(10, 1), vote(20, -1)));
+        UserVoteIndex index = new UserVoteIndex(repository, 1 << 20);
+
+        UserVoteIndex.UserVotes votes = index.votesOf(1L);
+        index.votesOf(1L);
+
+        assertEquals(1, votes.valueOf(10L));
+        assertEquals(-1, votes.valueOf(20L));
+        assertNull(votes.valueOf(30L));
+        verify(repository, times(1)).findVotesByUserId(1L);
+    }
+
+    @Test
+    void recordUpdatesLoadedUser() {
+        VoteRepository repository = mock(VoteRepository.class);
+        when(repository.findVotesByUserId(1L)).thenReturn(List.of(vote(10, 1)));
+        UserVoteIndex index = new UserVoteIndex(repository, 1 << 20);
+        index.votesOf(1L);
+
+        index.record(1L, 10L, -1);
+        index.record(1L, 11L, 1);
+
+        assertEquals(-1, index.votesOf(1L).valueOf(10L));
+        assertEquals(1, index.votesOf(1L).valueOf(11L));
+    }
+
+    @Test
+    void invalidationDropsUserAndReloadsFromRepository() {
+        VoteRepository repository = mock(VoteRepository.class);
+        when(repository.findVotesByUserId(1L))
+                .thenReturn(List.of(vote(10, 1)))
+                .thenReturn(List.of(vote(10, -1)));
+        UserVoteIndex index = new UserVoteIndex(repository, 1 << 20);
+        index.votesOf(1L);
+
+        index.invalidate(Set.of("1", "2"));
+
+        assertEquals(0, index.cachedUsers());
+        assertEquals(0, index.usedBytes());
+        assertEquals(-1, index.votesOf(1L).valueOf(10L));
+    }
+
+    @Test
+    void voteDuringLoadSkipsCachingOnlyForThatUser() {
+        VoteRepository repository = mock(VoteRepository.class);
+        UserVoteIndex index = new UserVoteIndex(repository, 1 << 20);
+        // Голоса, зафиксированные, пока идёт загрузка пользователя 1
+        when(repository.findVotesByUserId(1L)).thenAnswer(invocation -> {
+            index.record(2L, 20L, 1);
+            return List.of(vote(10, 1));
+        });
+        when(repository.findVotesByUserId(3L)).thenAnswer(invocation -> {
+            index.record(3L, 30L, 1);
+            return List.of(vote(10, 1));
+        });
+
+        index.votesOf(1L);
+        index.votesOf(3L);
+
+        assertEquals(1, index.cachedUsers());
+        index.votesOf(1L);
+        verify(repository, times(1)).findVotesByUserId(1L);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUsersOverBudget() {
+        VoteRepository repository = mock(VoteRepository.class);
+        when(repository.findVotesByUserId(anyLong())).thenReturn(List.of(vote(10, 1)));
+        UserVoteIndex index = new UserVoteIndex(repository, 1000);
+
+        for (long userId = 0; userId < 100; userId++) {
+            index.votesOf(userId);
+        }
+
+        assertTrue(index.usedBytes() <= 1000);
+        assertTrue(index.cachedUsers() < 100);
+    }
+
+    // Отчёт о потреблении памяти: 1 млн голосов, 10 000 пользователей по 100 голосов,
+    // id отзывов равномерно из первого миллиона
+    @Test
+    void memoryFootprintPerMillionVotes() {
+        Random random = new Random(42);
+        VoteRepository repository = mock(VoteRepository.class);
+        UserVoteIndex index = new UserVoteIndex(repository, Long.MAX_VALUE);
+
+        int users = 10_000;
+        int votesPerUser = 100;
+        for (long userId = 0; userId < users; userId++) {
+            List<VoteRepository.UserVoteView> votes = random.ints(votesPerUser, 1, 1_000_000)
+                    .mapToObj(reviewId -> vote(reviewId, random.nextBoolean() ? 1 : -1))
+                    .toList();
+            when(repository.findVotesByUserId(userId)).thenReturn(votes);
+            index.votesOf(userId);
+        }
+
+        // Около 7 байт на голос, см. README
+        double bytesPerVote = (double) index.usedBytes() / (users * votesPerUser);
+        assertTrue(bytesPerVote < 8, "bytes per vote: " + bytesPerVote);
+    }
+}